@@ -0,0 +1,332 @@
+package com.cs6650.imageprocessor.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local disk cache of processed images. On the pod's emptyDir volume it survives
+ * container restarts within the pod, so a restarted container doesn't have to go
+ * back to S3 for everything. New pods start with an empty cache.
+ *
+ * Images are appended to fixed-size, memory-mapped segment files and located
+ * through an in-memory index. Each record is laid out as
+ * [magic][key length][data length][key][data]. Space for a record is reserved
+ * under a lock, but the image is copied outside it so concurrent writes don't
+ * queue behind each other, and the entry is only indexed once the copy is done.
+ * The header is written last so a record torn by a crash is simply treated as
+ * the end of the segment. At startup
+ * the index is rebuilt by walking the record headers of each segment, without
+ * reading image data. Hits are returned as read-only slices of the mapping, so
+ * they can be written to the response without copying onto the heap.
+ *
+ * Opening is best effort too: segment files that can't be read are skipped, and
+ * if the directory itself can't be used the cache is disabled for this run.
+ *
+ * When the cache exceeds its size limit, the oldest segment is dropped from the
+ * index and its file deleted. The mapping itself is only released once the JVM
+ * garbage collects the buffer, since Java 11 has no safe way to unmap while a
+ * response may still be reading a slice of it. Until then the deleted file keeps
+ * using disk blocks and page cache, so the volume needs headroom above
+ * cache.disk.max-size-mb (see k8s/deployment.yaml).
+ */
+@Component
+@Slf4j
+public class DiskImageCache {
+
+  private static final int MAGIC = 0x494D4743; // "IMGC"
+  private static final int HEADER_SIZE = 12;
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".dat";
+
+  private final Map<String, Entry> index = new ConcurrentHashMap<>();
+  private final Deque<Segment> segments = new ArrayDeque<>();
+  private final MeterRegistry meterRegistry;
+  private volatile boolean enabled;
+  private final Path directory;
+  private final long segmentSize;
+  private final long maxSize;
+  private final Counter hits;
+  private final Counter misses;
+
+  private Segment activeSegment;
+  private long nextSegmentId;
+
+  public DiskImageCache(MeterRegistry meterRegistry,
+                        @Value("${cache.disk.enabled}") boolean enabled,
+                        @Value("${cache.disk.directory}") String directory,
+                        @Value("${cache.disk.segment-size-mb}") long segmentSizeMb,
+                        @Value("${cache.disk.max-size-mb}") long maxSizeMb) {
+    this.meterRegistry = meterRegistry;
+    this.enabled = enabled;
+    this.directory = Paths.get(directory);
+    this.segmentSize = segmentSizeMb * 1024 * 1024;
+    this.maxSize = maxSizeMb * 1024 * 1024;
+    if (segmentSize <= HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("cache.disk.segment-size-mb must be between 1 and 2047");
+    }
+    this.hits = meterRegistry.counter("image.cache.disk.requests", "result", "hit");
+    this.misses = meterRegistry.counter("image.cache.disk.requests", "result", "miss");
+  }
+
+  /**
+   * Rebuild the index from the segments on disk. If the directory can't be used
+   * the cache is disabled rather than failing startup, since it is best effort.
+   */
+  @PostConstruct
+  public synchronized void open() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      load();
+    } catch (IOException | RuntimeException e) {
+      log.error("Failed to open disk cache at {}, continuing without it", directory, e);
+      enabled = false;
+      index.clear();
+      segments.clear();
+      activeSegment = null;
+    }
+  }
+
+  private void load() throws IOException {
+    Files.createDirectories(directory);
+
+    long start = System.nanoTime();
+    List<Path> segmentFiles;
+    try (Stream<Path> files = Files.list(directory)) {
+      segmentFiles = files
+          .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+          .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+
+    for (Path segmentFile : segmentFiles) {
+      long id;
+      try {
+        id = parseSegmentId(segmentFile);
+      } catch (NumberFormatException e) {
+        log.warn("Ignoring unexpected file {} in disk cache directory", segmentFile);
+        continue;
+      }
+      // Never reuse the id of an existing file, even one that can't be opened
+      nextSegmentId = Math.max(nextSegmentId, id + 1);
+      try {
+        Segment segment = mapSegment(id, segmentFile, Math.max(Files.size(segmentFile), HEADER_SIZE));
+        segments.addLast(segment);
+        rebuildIndex(segment);
+      } catch (IOException | RuntimeException e) {
+        log.warn("Skipping unreadable disk cache segment {}: {}", segmentFile, e.getMessage());
+        if (!segments.isEmpty() && segments.peekLast().path.equals(segmentFile)) {
+          Segment skipped = segments.pollLast();
+          index.values().removeIf(entry -> entry.segment == skipped);
+        }
+      }
+    }
+    activeSegment = segments.isEmpty() ? rollSegment() : segments.peekLast();
+    evictIfNeeded();
+
+    Gauge.builder("image.cache.disk.entries", index, Map::size).register(meterRegistry);
+    Gauge.builder("image.cache.disk.segments", this, cache -> cache.segmentCount()).register(meterRegistry);
+    log.info("Disk cache opened at {}: {} entries in {} segments, index rebuilt in {} ms",
+        directory, index.size(), segments.size(), (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Look up an image in the cache
+   *
+   * @param key The image key
+   * @return A read-only view of the image in the mapped segment, or empty on a miss
+   */
+  public Optional<ByteBuffer> get(String key) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+    Entry entry = index.get(key);
+    if (entry == null) {
+      misses.increment();
+      return Optional.empty();
+    }
+    hits.increment();
+
+    ByteBuffer view = entry.segment.buffer.duplicate();
+    view.position(entry.offset);
+    view.limit(entry.offset + entry.length);
+    return Optional.of(view.slice().asReadOnlyBuffer());
+  }
+
+  /**
+   * Add an image to the cache. Keys are immutable, so an existing entry is kept.
+   * Failures are logged and otherwise ignored since the cache is best effort.
+   *
+   * @param key The image key
+   * @param data The image bytes
+   */
+  public void put(String key, byte[] data) {
+    if (!enabled || index.containsKey(key)) {
+      return;
+    }
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    long recordSize = (long) HEADER_SIZE + keyBytes.length + data.length;
+    if (recordSize > segmentSize) {
+      log.debug("Image {} is larger than a cache segment, not caching", key);
+      return;
+    }
+
+    Segment segment;
+    int recordOffset;
+    synchronized (this) {
+      try {
+        if (activeSegment.writeOffset + recordSize > activeSegment.buffer.capacity()) {
+          activeSegment = rollSegment();
+          evictIfNeeded();
+        }
+      } catch (IOException e) {
+        log.warn("Failed to write image {} to disk cache: {}", key, e.getMessage());
+        return;
+      }
+      segment = activeSegment;
+      recordOffset = segment.writeOffset;
+      segment.writeOffset += (int) recordSize;
+    }
+
+    // Copy outside the lock, each writer into its own reserved range
+    int dataOffset = recordOffset + HEADER_SIZE + keyBytes.length;
+    ByteBuffer view = segment.buffer.duplicate();
+    view.position(recordOffset + HEADER_SIZE);
+    view.put(keyBytes);
+    view.put(data);
+    view.putInt(recordOffset + 4, keyBytes.length);
+    view.putInt(recordOffset + 8, data.length);
+    view.putInt(recordOffset, MAGIC);
+
+    synchronized (this) {
+      // The segment may have been evicted while the record was being copied
+      if (!segment.evicted) {
+        index.putIfAbsent(key, new Entry(segment, dataOffset, data.length));
+      }
+    }
+  }
+
+  private synchronized int segmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Walk the record headers of a segment and index every complete record
+   */
+  private void rebuildIndex(Segment segment) {
+    ByteBuffer buffer = segment.buffer;
+    int position = 0;
+    while (position + HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+      int keyLength = buffer.getInt(position + 4);
+      int dataLength = buffer.getInt(position + 8);
+      long recordEnd = (long) position + HEADER_SIZE + keyLength + dataLength;
+      if (keyLength <= 0 || dataLength < 0 || recordEnd > buffer.capacity()) {
+        log.warn("Corrupt record at offset {} in cache segment {}, ignoring the rest", position, segment.id);
+        break;
+      }
+
+      byte[] keyBytes = new byte[keyLength];
+      ByteBuffer view = buffer.duplicate();
+      view.position(position + HEADER_SIZE);
+      view.get(keyBytes);
+      index.put(new String(keyBytes, StandardCharsets.UTF_8),
+          new Entry(segment, position + HEADER_SIZE + keyLength, dataLength));
+      position = (int) recordEnd;
+    }
+    segment.writeOffset = position;
+  }
+
+  private Segment rollSegment() throws IOException {
+    long id = nextSegmentId++;
+    Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    Segment segment = mapSegment(id, path, segmentSize);
+    segments.addLast(segment);
+    return segment;
+  }
+
+  /**
+   * Drop the oldest segments until the cache fits its size limit. Readers still
+   * holding a slice keep working, since the mapping outlives the deleted file;
+   * it is released when the buffer is garbage collected.
+   */
+  private void evictIfNeeded() {
+    long totalSize = segments.stream().mapToLong(segment -> segment.buffer.capacity()).sum();
+    while (totalSize > maxSize && segments.size() > 1) {
+      Segment oldest = segments.pollFirst();
+      oldest.evicted = true;
+      index.values().removeIf(entry -> entry.segment == oldest);
+      totalSize -= oldest.buffer.capacity();
+      try {
+        Files.deleteIfExists(oldest.path);
+        log.info("Evicted disk cache segment {}", oldest.id);
+      } catch (IOException e) {
+        log.warn("Failed to delete disk cache segment {}: {}", oldest.path, e.getMessage());
+      }
+    }
+  }
+
+  private static Segment mapSegment(long id, Path path, long size) throws IOException {
+    // Mapping READ_WRITE extends new files to the full segment size; unused space stays sparse
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+         FileChannel channel = file.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      return new Segment(id, path, buffer);
+    }
+  }
+
+  private static long parseSegmentId(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+  }
+
+  private static final class Segment {
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int writeOffset;
+    private boolean evicted;
+
+    private Segment(long id, Path path, MappedByteBuffer buffer) {
+      this.id = id;
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+
+  private static final class Entry {
+    private final Segment segment;
+    private final int offset;
+    private final int length;
+
+    private Entry(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+}
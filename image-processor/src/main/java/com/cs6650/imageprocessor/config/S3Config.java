@@ -5,11 +5,16 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
 
 import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class S3Config {
@@ -26,6 +31,33 @@ public class S3Config {
   @Value("${aws.secretKey}")
   private String secretKey;
 
+  @Value("${aws.s3.http.max-connections}")
+  private int maxConnections;
+
+  @Value("${aws.s3.http.connection-timeout-ms}")
+  private long connectionTimeoutMs;
+
+  @Value("${aws.s3.http.connection-acquisition-timeout-ms}")
+  private long connectionAcquisitionTimeoutMs;
+
+  @Value("${aws.s3.http.socket-timeout-ms}")
+  private long socketTimeoutMs;
+
+  @Value("${aws.s3.http.connection-max-idle-ms}")
+  private long connectionMaxIdleMs;
+
+  @Value("${aws.s3.http.tcp-keep-alive}")
+  private boolean tcpKeepAlive;
+
+  @Value("${aws.s3.retry.max-retries}")
+  private int maxRetries;
+
+  @Value("${aws.s3.api-call-attempt-timeout-ms}")
+  private long apiCallAttemptTimeoutMs;
+
+  @Value("${aws.s3.api-call-timeout-ms}")
+  private long apiCallTimeoutMs;
+
   @Bean
   public S3Client s3Client() {
     // For LocalStack, we use dummy credentials
@@ -35,11 +67,29 @@ public class S3Config {
         .pathStyleAccessEnabled(true) // Required for LocalStack
         .build();
 
+    // Pool sized for the Tomcat threads plus hedged GETs, keeping connections warm between requests
+    ApacheHttpClient.Builder httpClientBuilder = ApacheHttpClient.builder()
+        .maxConnections(maxConnections)
+        .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+        .connectionAcquisitionTimeout(Duration.ofMillis(connectionAcquisitionTimeoutMs))
+        .socketTimeout(Duration.ofMillis(socketTimeoutMs))
+        .connectionMaxIdleTime(Duration.ofMillis(connectionMaxIdleMs))
+        .tcpKeepAlive(tcpKeepAlive);
+
+    // Adaptive retries back off client-side when S3 starts throttling
+    ClientOverrideConfiguration overrideConfiguration = ClientOverrideConfiguration.builder()
+        .retryPolicy(RetryPolicy.builder(RetryMode.ADAPTIVE).numRetries(maxRetries).build())
+        .apiCallAttemptTimeout(Duration.ofMillis(apiCallAttemptTimeoutMs))
+        .apiCallTimeout(Duration.ofMillis(apiCallTimeoutMs))
+        .build();
+
     return S3Client.builder()
         .endpointOverride(URI.create(endpoint))
         .region(Region.of(region))
         .credentialsProvider(StaticCredentialsProvider.create(credentials))
         .serviceConfiguration(s3Configuration)
+        .httpClientBuilder(httpClientBuilder)
+        .overrideConfiguration(overrideConfiguration)
         .build();
   }
-}
\ No newline at end of file
+}
@@ -4,12 +4,18 @@ import com.cs6650.imageprocessor.model.ImageResponse;
 import com.cs6650.imageprocessor.service.ImageService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.time.LocalDateTime;
 import java.util.Map;
 
@@ -20,12 +26,16 @@ import java.util.Map;
 public class ImageController {
 
   private final ImageService imageService;
+  private final ApplicationAvailability applicationAvailability;
 
   /**
-   * Health check endpoint
+   * Health check endpoint, reports unavailable until startup warm-up has finished
    */
   @GetMapping("/health")
   public ResponseEntity<String> health() {
+    if (applicationAvailability.getReadinessState() != ReadinessState.ACCEPTING_TRAFFIC) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Image processor service is warming up");
+    }
     return ResponseEntity.ok("Image processor service is up and running!");
   }
 
@@ -214,20 +224,22 @@ public class ImageController {
    * Get a processed image by its key
    */
   @GetMapping(value = "/{imageKey}", produces = {MediaType.IMAGE_JPEG_VALUE, MediaType.IMAGE_PNG_VALUE})
-  public ResponseEntity<byte[]> getImage(@PathVariable String imageKey) {
+  public void getImage(@PathVariable String imageKey, HttpServletResponse response) throws IOException {
+    ByteBuffer imageBytes;
     try {
-      byte[] imageBytes = imageService.getImage(imageKey);
-
-      // Determine the content type based on the file extension
-      String contentType = determineContentType(imageKey);
-
-      return ResponseEntity.ok()
-          .contentType(MediaType.parseMediaType(contentType))
-          .body(imageBytes);
+      imageBytes = imageService.getImage(imageKey);
     } catch (IOException e) {
       log.error("Error retrieving image", e);
-      return ResponseEntity.notFound().build();
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
     }
+
+    // Determine the content type based on the file extension
+    response.setContentType(determineContentType(imageKey));
+    response.setContentLength(imageBytes.remaining());
+
+    // Write straight from the buffer, which on a cache hit is the mapped segment itself
+    Channels.newChannel(response.getOutputStream()).write(imageBytes);
   }
 
   /**
@@ -7,8 +7,10 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import software.amazon.awssdk.core.exception.SdkException;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.RejectedExecutionException;
 
 @ControllerAdvice
 @Slf4j
@@ -26,6 +28,29 @@ public class GlobalExceptionHandler {
             .build());
   }
 
+  @ExceptionHandler(RejectedExecutionException.class)
+  public ResponseEntity<ImageResponse> handleRejectedException(RejectedExecutionException exc) {
+    return ResponseEntity
+        .status(HttpStatus.SERVICE_UNAVAILABLE)
+        .body(ImageResponse.builder()
+            .success(false)
+            .message("Server is busy processing other images, please retry")
+            .timestamp(LocalDateTime.now())
+            .build());
+  }
+
+  @ExceptionHandler(SdkException.class)
+  public ResponseEntity<ImageResponse> handleStorageException(SdkException exc) {
+    log.error("S3 request failed", exc);
+    return ResponseEntity
+        .status(HttpStatus.SERVICE_UNAVAILABLE)
+        .body(ImageResponse.builder()
+            .success(false)
+            .message("Image storage is unavailable, please retry")
+            .timestamp(LocalDateTime.now())
+            .build());
+  }
+
   @ExceptionHandler(Exception.class)
   public ResponseEntity<ImageResponse> handleGenericException(Exception exc) {
     log.error("Unexpected error", exc);
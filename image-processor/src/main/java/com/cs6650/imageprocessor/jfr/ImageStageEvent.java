@@ -0,0 +1,73 @@
+package com.cs6650.imageprocessor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering one image processing stage: decode, a transform or encode.
+ * Fields are only filled in when the event is being recorded.
+ */
+@Name("com.cs6650.imageprocessor.ImageStage")
+@Label("Image Stage")
+@Category({"Image Processor", "Processing"})
+@Description("Decode, transform or encode of a single image")
+@StackTrace(false)
+public class ImageStageEvent extends Event {
+
+  @Label("Operation")
+  @Description("decode, resize, filter, watermark or encode")
+  private String operation;
+
+  @Label("Detail")
+  @Description("Filter type or image format, if any")
+  private String detail;
+
+  @Label("Width")
+  private int width;
+
+  @Label("Height")
+  private int height;
+
+  @Label("Input Size")
+  @DataAmount
+  private long inputBytes;
+
+  @Label("Output Size")
+  @DataAmount
+  private long outputBytes;
+
+  /**
+   * Create an event and start timing the stage
+   */
+  public static ImageStageEvent start(String operation, String detail) {
+    ImageStageEvent event = new ImageStageEvent();
+    event.operation = operation;
+    event.detail = detail;
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Stop timing and commit the event if it is being recorded
+   *
+   * @param width The image width, 0 if unknown
+   * @param height The image height, 0 if unknown
+   * @param inputBytes The encoded input size, 0 if not applicable
+   * @param outputBytes The encoded output size, 0 if not applicable
+   */
+  public void finish(int width, int height, long inputBytes, long outputBytes) {
+    end();
+    if (shouldCommit()) {
+      this.width = width;
+      this.height = height;
+      this.inputBytes = inputBytes;
+      this.outputBytes = outputBytes;
+      commit();
+    }
+  }
+}
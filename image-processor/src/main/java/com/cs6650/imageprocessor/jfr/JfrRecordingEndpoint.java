@@ -0,0 +1,251 @@
+package com.cs6650.imageprocessor.jfr;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Actuator endpoint to control a bounded Flight Recorder recording at runtime:
+ *
+ * GET  /actuator/jfr        recording status
+ * POST /actuator/jfr/start  start a recording (optional settings, maxAgeSeconds, maxSizeMb)
+ * POST /actuator/jfr/stop   stop and discard the recording
+ * GET  /actuator/jfr/dump   download a snapshot of the recording so far
+ *
+ * The recording keeps only the last maxAge / maxSize of data, so it can run
+ * continuously. Both are capped by configured limits. With the "default"
+ * settings the overhead is around 1%.
+ *
+ * Dumps can contain request data, so actuator is served on the separate
+ * management.server.port, which the Kubernetes Service doesn't expose. The JVM's
+ * environment variables and system properties are left out of recordings since
+ * they hold the AWS credentials.
+ */
+@Component
+@WebEndpoint(id = "jfr")
+@Slf4j
+public class JfrRecordingEndpoint {
+
+  private static final String RECORDING_NAME = "image-processor";
+  private static final List<String> ALLOWED_SETTINGS = Arrays.asList("default", "profile");
+
+  @Value("${jfr.recording.start-on-boot}")
+  private boolean startOnBoot;
+
+  @Value("${jfr.recording.settings}")
+  private String defaultSettings;
+
+  @Value("${jfr.recording.max-age-seconds}")
+  private long defaultMaxAgeSeconds;
+
+  @Value("${jfr.recording.max-size-mb}")
+  private long defaultMaxSizeMb;
+
+  @Value("${jfr.recording.max-age-limit-seconds}")
+  private long maxAgeLimitSeconds;
+
+  @Value("${jfr.recording.max-size-limit-mb}")
+  private long maxSizeLimitMb;
+
+  private Recording recording;
+
+  @PostConstruct
+  public void init() throws IOException, ParseException {
+    if (startOnBoot) {
+      start(null, null, null);
+    }
+  }
+
+  @PreDestroy
+  public synchronized void close() {
+    if (recording != null) {
+      recording.close();
+      recording = null;
+    }
+  }
+
+  @ReadOperation
+  public synchronized Map<String, Object> status() {
+    Map<String, Object> status = new LinkedHashMap<>();
+    if (recording == null) {
+      status.put("state", "NOT_STARTED");
+      return status;
+    }
+    status.put("state", recording.getState());
+    status.put("startTime", recording.getStartTime());
+    status.put("maxAgeSeconds", recording.getMaxAge().getSeconds());
+    status.put("maxSizeBytes", recording.getMaxSize());
+    status.put("sizeBytes", recording.getSize());
+    return status;
+  }
+
+  @WriteOperation
+  public synchronized WebEndpointResponse<Map<String, Object>> control(@Selector String action,
+                                                                        @Nullable String settings,
+                                                                        @Nullable Long maxAgeSeconds,
+                                                                        @Nullable Long maxSizeMb) {
+    try {
+      switch (action) {
+        case "start":
+          if ((settings != null && !ALLOWED_SETTINGS.contains(settings))
+              || (maxAgeSeconds != null && maxAgeSeconds <= 0)
+              || (maxSizeMb != null && maxSizeMb <= 0)) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+          }
+          start(settings, maxAgeSeconds, maxSizeMb);
+          break;
+        case "stop":
+          close();
+          log.info("Stopped JFR recording");
+          break;
+        default:
+          return new WebEndpointResponse<>(WebEndpointResponse.STATUS_BAD_REQUEST);
+      }
+    } catch (IOException | ParseException e) {
+      log.error("Error starting JFR recording", e);
+      return new WebEndpointResponse<>(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+    }
+    return new WebEndpointResponse<>(status());
+  }
+
+  @ReadOperation
+  public synchronized WebEndpointResponse<Resource> dump(@Selector String name) {
+    if (!"dump".equals(name)) {
+      return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+    if (recording == null || recording.getState() != RecordingState.RUNNING) {
+      return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+    }
+    Path path = null;
+    try {
+      // One file per dump, deleted once streamed, so concurrent dumps can't overwrite each other
+      path = Files.createTempFile("image-processor-", ".jfr");
+      recording.dump(path);
+      return new WebEndpointResponse<>(new TemporaryFileResource(path));
+    } catch (IOException e) {
+      log.error("Error dumping JFR recording", e);
+      deleteQuietly(path);
+      return new WebEndpointResponse<>(WebEndpointResponse.STATUS_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Start a new recording, replacing any recording already running
+   */
+  private synchronized void start(String settings, Long maxAgeSeconds, Long maxSizeMb)
+      throws IOException, ParseException {
+    close();
+
+    String settingsName = settings != null ? settings : defaultSettings;
+    Recording newRecording = new Recording(Configuration.getConfiguration(settingsName));
+    newRecording.setName(RECORDING_NAME);
+    newRecording.setToDisk(true);
+    // JFR treats 0 as unlimited, so values are always clamped into (0, limit]
+    long ageSeconds = Math.min(maxAgeSeconds != null ? maxAgeSeconds : defaultMaxAgeSeconds, maxAgeLimitSeconds);
+    long sizeMb = Math.min(maxSizeMb != null ? maxSizeMb : defaultMaxSizeMb, maxSizeLimitMb);
+    newRecording.setMaxAge(Duration.ofSeconds(Math.max(1, ageSeconds)));
+    newRecording.setMaxSize(Math.max(1, sizeMb) * 1024 * 1024);
+    newRecording.enable(ImageStageEvent.class);
+    newRecording.enable(S3OperationEvent.class);
+    // These capture the environment and system properties, including AWS credentials
+    newRecording.disable("jdk.InitialEnvironmentVariable");
+    newRecording.disable("jdk.InitialSystemProperty");
+    newRecording.start();
+    recording = newRecording;
+
+    log.info("Started JFR recording with '{}' settings", settingsName);
+  }
+
+  private static void deleteQuietly(Path path) {
+    if (path == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      log.warn("Failed to delete JFR dump {}: {}", path, e.getMessage());
+    }
+  }
+
+  /**
+   * Dump file that is deleted once the response has been streamed
+   */
+  private static final class TemporaryFileResource extends FileSystemResource {
+
+    private TemporaryFileResource(Path path) {
+      super(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      return new FilterInputStream(super.getInputStream()) {
+        @Override
+        public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            deleteQuietly(getFile().toPath());
+          }
+        }
+      };
+    }
+
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+      ReadableByteChannel channel = super.readableChannel();
+      return new ReadableByteChannel() {
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+          return channel.read(dst);
+        }
+
+        @Override
+        public boolean isOpen() {
+          return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+          try {
+            channel.close();
+          } finally {
+            deleteQuietly(getFile().toPath());
+          }
+        }
+      };
+    }
+
+    @Override
+    public boolean isFile() {
+      // Stops the response from being served as a file region that skips close()
+      return false;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.cs6650.imageprocessor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering one S3 GET or PUT, including retries and hedging
+ */
+@Name("com.cs6650.imageprocessor.S3Operation")
+@Label("S3 Operation")
+@Category({"Image Processor", "S3"})
+@Description("S3 GET or PUT of a single image")
+@StackTrace(false)
+public class S3OperationEvent extends Event {
+
+  @Label("Operation")
+  @Description("get or put")
+  private String operation;
+
+  @Label("Key")
+  private String key;
+
+  @Label("Size")
+  @DataAmount
+  private long bytes;
+
+  @Label("Success")
+  private boolean success;
+
+  /**
+   * Create an event and start timing the operation
+   */
+  public static S3OperationEvent start(String operation, String key) {
+    S3OperationEvent event = new S3OperationEvent();
+    event.operation = operation;
+    event.key = key;
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Stop timing and commit the event if it is being recorded
+   *
+   * @param bytes The object size, 0 if unknown
+   * @param success Whether the operation succeeded
+   */
+  public void finish(long bytes, boolean success) {
+    end();
+    if (shouldCommit()) {
+      this.bytes = bytes;
+      this.success = success;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.cs6650.imageprocessor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs image processing on separate bounded executors for small and large images,
+ * classified by decoded pixel count, so a single huge upload can't hold up a
+ * queue of thumbnails behind it. Queue wait and processing time are recorded
+ * per class to tune the threshold and pool sizes.
+ *
+ * Only the CPU-bound decode, transform and encode should run here. S3 uploads
+ * stay on the request thread so network I/O doesn't limit pod concurrency to
+ * the size of these pools.
+ *
+ * When a class's queue is full the task is rejected with a
+ * RejectedExecutionException rather than piling more work onto the pod.
+ */
+@Service
+@Slf4j
+public class ImageProcessingScheduler {
+
+  private final long largeImageThresholdPixels;
+  private final SizeClass small;
+  private final SizeClass large;
+
+  public ImageProcessingScheduler(MeterRegistry meterRegistry,
+                                  @Value("${scheduler.large-image-threshold-pixels}") long largeImageThresholdPixels,
+                                  @Value("${scheduler.small.threads}") int smallThreads,
+                                  @Value("${scheduler.small.queue-capacity}") int smallQueueCapacity,
+                                  @Value("${scheduler.large.threads}") int largeThreads,
+                                  @Value("${scheduler.large.queue-capacity}") int largeQueueCapacity) {
+    this.largeImageThresholdPixels = largeImageThresholdPixels;
+    this.small = new SizeClass("small", smallThreads, smallQueueCapacity, meterRegistry);
+    this.large = new SizeClass("large", largeThreads, largeQueueCapacity, meterRegistry);
+  }
+
+  /**
+   * Run a processing task on the executor for its size class and wait for the result
+   *
+   * @param pixelCount The decoded pixel count of the source image, 0 if unknown
+   * @param task The processing work
+   * @return The task's result
+   */
+  public <T> T execute(long pixelCount, ProcessingTask<T> task) throws IOException {
+    SizeClass sizeClass = pixelCount >= largeImageThresholdPixels ? large : small;
+    long enqueuedAt = System.nanoTime();
+
+    Future<T> future;
+    try {
+      future = sizeClass.executor.submit(() -> {
+        long startedAt = System.nanoTime();
+        sizeClass.queueWait.record(startedAt - enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+          return task.run();
+        } finally {
+          sizeClass.processing.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      log.warn("Rejecting {} image ({} pixels), processing queue is full", sizeClass.name, pixelCount);
+      throw e;
+    }
+
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException("Error processing image: " + cause.getMessage(), cause);
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for image processing", e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    small.executor.shutdownNow();
+    large.executor.shutdownNow();
+  }
+
+  /**
+   * Processing work that may fail with an IOException
+   */
+  @FunctionalInterface
+  public interface ProcessingTask<T> {
+    T run() throws IOException;
+  }
+
+  private static final class SizeClass {
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final Timer queueWait;
+    private final Timer processing;
+
+    private SizeClass(String name, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+      this.name = name;
+      AtomicInteger threadCount = new AtomicInteger();
+      this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-" + name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+      this.queueWait = Timer.builder("image.scheduler.queue.wait")
+          .description("Time a processing task waits for a worker thread")
+          .tag("class", name)
+          .publishPercentiles(0.5, 0.9, 0.99)
+          .register(meterRegistry);
+      this.processing = Timer.builder("image.scheduler.processing")
+          .description("Time spent processing an image once it has a worker thread")
+          .tag("class", name)
+          .publishPercentiles(0.5, 0.9, 0.99)
+          .register(meterRegistry);
+      Gauge.builder("image.scheduler.queue.size", executor, pool -> pool.getQueue().size())
+          .tag("class", name)
+          .register(meterRegistry);
+    }
+  }
+}
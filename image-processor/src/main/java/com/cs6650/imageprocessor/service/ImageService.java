@@ -1,20 +1,21 @@
 package com.cs6650.imageprocessor.service;
 
+import com.cs6650.imageprocessor.cache.DiskImageCache;
+import com.cs6650.imageprocessor.jfr.ImageStageEvent;
+import com.cs6650.imageprocessor.jfr.S3OperationEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.imgscalr.Scalr;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.ResponseBytes;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.GetObjectResponse;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.awt.image.ConvolveOp;
@@ -22,16 +23,25 @@ import java.awt.image.Kernel;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ImageService {
 
-  private final S3Client s3Client;
+  private final S3StorageService s3StorageService;
+  private final DiskImageCache diskImageCache;
+  private final ImageProcessingScheduler processingScheduler;
+
+  private static final String[] FILTER_TYPES = {"grayscale", "sepia", "blur", "sharpen"};
 
   @Value("${aws.s3.bucket}")
   private String bucketName;
@@ -59,14 +69,19 @@ public class ImageService {
   public Map<String, String> resizeImage(MultipartFile file) throws IOException {
     log.info("Resizing image: {}", file.getOriginalFilename());
 
-    // Read the image
-    BufferedImage originalImage = ImageIO.read(file.getInputStream());
+    byte[] imageBytes = processingScheduler.execute(readPixelCount(file), () -> {
+      // Read the image
+      BufferedImage originalImage = decodeImage(file);
+
+      // Resize the image
+      BufferedImage resizedImage = transform("resize", null, originalImage, this::resizeImageInternal);
 
-    // Resize the image
-    BufferedImage resizedImage = resizeImageInternal(originalImage);
+      // Encode in the original format
+      return encodeImage(resizedImage, getFormatName(file.getOriginalFilename()));
+    });
 
-    // Upload to S3 and return result
-    return uploadImageToS3(resizedImage, file.getContentType(), file.getOriginalFilename());
+    // Upload to S3 on the request thread, so network I/O doesn't hold a processing thread
+    return uploadImageToS3(imageBytes, file.getContentType(), file.getOriginalFilename());
   }
 
   /**
@@ -80,14 +95,20 @@ public class ImageService {
   public Map<String, String> watermarkImage(MultipartFile file, String watermarkText, String position) throws IOException {
     log.info("Adding watermark to image: {}", file.getOriginalFilename());
 
-    // Read the image
-    BufferedImage originalImage = ImageIO.read(file.getInputStream());
+    byte[] imageBytes = processingScheduler.execute(readPixelCount(file), () -> {
+      // Read the image
+      BufferedImage originalImage = decodeImage(file);
 
-    // Add watermark
-    BufferedImage watermarkedImage = addWatermark(originalImage, watermarkText, position);
+      // Add watermark
+      BufferedImage watermarkedImage = transform("watermark", position, originalImage,
+          image -> addWatermark(image, watermarkText, position));
 
-    // Upload to S3 and return result
-    return uploadImageToS3(watermarkedImage, file.getContentType(), file.getOriginalFilename());
+      // Encode in the original format
+      return encodeImage(watermarkedImage, getFormatName(file.getOriginalFilename()));
+    });
+
+    // Upload to S3 on the request thread, so network I/O doesn't hold a processing thread
+    return uploadImageToS3(imageBytes, file.getContentType(), file.getOriginalFilename());
   }
 
   /**
@@ -100,40 +121,149 @@ public class ImageService {
   public Map<String, String> filterImage(MultipartFile file, String filterType) throws IOException {
     log.info("Applying {} filter to image: {}", filterType, file.getOriginalFilename());
 
-    // Read the image
-    BufferedImage originalImage = ImageIO.read(file.getInputStream());
+    byte[] imageBytes = processingScheduler.execute(readPixelCount(file), () -> {
+      // Read the image
+      BufferedImage originalImage = decodeImage(file);
+
+      // Apply filter
+      BufferedImage filteredImage = transform("filter", filterType, originalImage,
+          image -> applyFilter(image, filterType));
 
-    // Apply filter
-    BufferedImage filteredImage = applyFilter(originalImage, filterType);
+      // Encode in the original format
+      return encodeImage(filteredImage, getFormatName(file.getOriginalFilename()));
+    });
 
-    // Upload to S3 and return result
-    return uploadImageToS3(filteredImage, file.getContentType(), file.getOriginalFilename());
+    // Upload to S3 on the request thread, so network I/O doesn't hold a processing thread
+    return uploadImageToS3(imageBytes, file.getContentType(), file.getOriginalFilename());
   }
 
   /**
-   * Retrieve an image from S3 by its key
+   * Retrieve an image by its key, from the local disk cache if present, otherwise from S3
    *
    * @param key The image key in S3
-   * @return The image bytes
+   * @return The image bytes, backed by the cache's mapped segment on a hit
+   * @throws IOException If no image exists with the key. Other S3 failures, such as
+   *         timeouts or an unreachable endpoint, are thrown as SdkException.
    */
-  public byte[] getImage(String key) throws IOException {
+  public ByteBuffer getImage(String key) throws IOException {
     log.info("Retrieving image with key: {}", key);
 
+    Optional<ByteBuffer> cached = diskImageCache.get(key);
+    if (cached.isPresent()) {
+      return cached.get();
+    }
+
+    S3OperationEvent event = S3OperationEvent.start("get", key);
     try {
-      // Create a request to get the object
-      GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-          .bucket(bucketName)
-          .key(key)
-          .build();
-
-      // Get the object from S3
-      ResponseBytes<GetObjectResponse> objectBytes = s3Client.getObjectAsBytes(getObjectRequest);
-
-      // Return the bytes
-      return objectBytes.asByteArray();
-    } catch (S3Exception e) {
+      // Get the object from S3, hedged if the first attempt is slow
+      byte[] imageBytes = s3StorageService.getObject(bucketName, key);
+      event.finish(imageBytes.length, true);
+      diskImageCache.put(key, imageBytes);
+      return ByteBuffer.wrap(imageBytes);
+    } catch (SdkException e) {
+      event.finish(0, false);
+      if (isMissingKey(e)) {
+        log.warn("Image not found in S3: {}", key);
+        throw new IOException("Image not found: " + key, e);
+      }
       log.error("Error retrieving image from S3: {}", e.getMessage(), e);
-      throw new IOException("Error retrieving image: " + e.getMessage(), e);
+      throw e;
+    }
+  }
+
+  /**
+   * Only a missing key should be reported as not found, everything else is an S3 failure
+   */
+  private static boolean isMissingKey(SdkException e) {
+    return e instanceof NoSuchKeyException
+        || (e instanceof S3Exception && ((S3Exception) e).statusCode() == 404);
+  }
+
+  /**
+   * Run every processing stage on an in-memory image without touching S3.
+   * Called during startup so the first real requests don't hit cold ImageIO
+   * plugins, font loading or interpreted pixel loops.
+   *
+   * @param imageBytes The encoded source image
+   * @param formatName The ImageIO format used to decode and re-encode it
+   */
+  public void warmUp(byte[] imageBytes, String formatName) throws IOException {
+    BufferedImage originalImage = decodeImage(new ByteArrayInputStream(imageBytes), imageBytes.length);
+    if (originalImage == null) {
+      throw new IOException("No ImageIO reader available for format: " + formatName);
+    }
+
+    encodeImage(transform("resize", null, originalImage, this::resizeImageInternal), formatName);
+    for (String filterType : FILTER_TYPES) {
+      encodeImage(transform("filter", filterType, originalImage, image -> applyFilter(image, filterType)), formatName);
+    }
+    encodeImage(transform("watermark", "bottom-right", originalImage,
+        image -> addWatermark(image, "warm-up", "bottom-right")), formatName);
+  }
+
+  /**
+   * Decode an uploaded image, closing the upload's stream afterwards since it
+   * may be backed by a temporary file
+   */
+  private BufferedImage decodeImage(MultipartFile file) throws IOException {
+    try (InputStream input = file.getInputStream()) {
+      return decodeImage(input, file.getSize());
+    }
+  }
+
+  /**
+   * Decode an image, recording a JFR stage event
+   *
+   * @param input The encoded image
+   * @param size The encoded size in bytes
+   * @return The decoded image, or null if no ImageIO reader understands it
+   */
+  private BufferedImage decodeImage(InputStream input, long size) throws IOException {
+    ImageStageEvent event = ImageStageEvent.start("decode", null);
+    BufferedImage image = ImageIO.read(input);
+    if (image == null) {
+      event.finish(0, 0, size, 0);
+    } else {
+      event.finish(image.getWidth(), image.getHeight(), size, 0);
+    }
+    return image;
+  }
+
+  /**
+   * Run a transform stage, recording a JFR stage event with the source dimensions
+   */
+  private BufferedImage transform(String operation, String detail, BufferedImage image,
+                                  UnaryOperator<BufferedImage> stage) {
+    ImageStageEvent event = ImageStageEvent.start(operation, detail);
+    BufferedImage result = stage.apply(image);
+    event.finish(image.getWidth(), image.getHeight(), 0, 0);
+    return result;
+  }
+
+  /**
+   * Read the image dimensions from its header, without decoding the pixels,
+   * to pick the scheduler's size class
+   *
+   * @return width * height, or 0 if no ImageIO reader understands the file
+   */
+  private long readPixelCount(MultipartFile file) throws IOException {
+    // Closing the ImageInputStream doesn't close the stream it wraps
+    try (InputStream fileInput = file.getInputStream();
+         ImageInputStream input = ImageIO.createImageInputStream(fileInput)) {
+      if (input == null) {
+        return 0;
+      }
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        return 0;
+      }
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        return (long) reader.getWidth(0) * reader.getHeight(0);
+      } finally {
+        reader.dispose();
+      }
     }
   }
 
@@ -346,24 +476,20 @@ public class ImageService {
   /**
    * Upload image to S3 and return URL and key
    */
-  private Map<String, String> uploadImageToS3(BufferedImage image, String contentType, String originalFilename) throws IOException {
-    // Convert to byte array
-    ByteArrayOutputStream os = new ByteArrayOutputStream();
-    String formatName = getFormatName(originalFilename);
-    ImageIO.write(image, formatName, os);
-    byte[] imageBytes = os.toByteArray();
-
+  private Map<String, String> uploadImageToS3(byte[] imageBytes, String contentType, String originalFilename) {
     // Generate unique key for S3
     String key = UUID.randomUUID().toString() + "-" + originalFilename;
 
     // Upload to S3
-    PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-        .bucket(bucketName)
-        .key(key)
-        .contentType(contentType)
-        .build();
-
-    s3Client.putObject(putObjectRequest, RequestBody.fromBytes(imageBytes));
+    S3OperationEvent event = S3OperationEvent.start("put", key);
+    try {
+      s3StorageService.putObject(bucketName, key, contentType, imageBytes);
+      event.finish(imageBytes.length, true);
+    } catch (SdkException e) {
+      event.finish(imageBytes.length, false);
+      throw e;
+    }
+    diskImageCache.put(key, imageBytes);
 
     log.info("Image processed and uploaded to S3: {}", key);
 
@@ -375,6 +501,18 @@ public class ImageService {
     return result;
   }
 
+  /**
+   * Encode an image into the given ImageIO format, recording a JFR stage event
+   */
+  private byte[] encodeImage(BufferedImage image, String formatName) throws IOException {
+    ImageStageEvent event = ImageStageEvent.start("encode", formatName);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    ImageIO.write(image, formatName, os);
+    byte[] imageBytes = os.toByteArray();
+    event.finish(image.getWidth(), image.getHeight(), 0, imageBytes.length);
+    return imageBytes;
+  }
+
   /**
    * Extract format name from filename for ImageIO
    */
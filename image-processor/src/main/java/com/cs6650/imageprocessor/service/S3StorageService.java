@@ -0,0 +1,389 @@
+package com.cs6650.imageprocessor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.utils.IoUtils;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * S3 reads and writes with per-operation latency metrics. GETs are hedged: if the
+ * first attempt takes longer than a recent latency percentile, a duplicate GET is
+ * issued and whichever finishes first wins, with the other one aborted. Hedges are
+ * limited to a fraction of recent GETs so a slow S3 doesn't get twice the load.
+ *
+ * Only the S3Client interface is used, so a fake client with injected latency or
+ * a LocalStack-backed client can be passed to the constructor directly.
+ */
+@Service
+@Slf4j
+public class S3StorageService {
+
+  private final S3Client s3Client;
+  private final MeterRegistry meterRegistry;
+  private final boolean hedgingEnabled;
+  private final double hedgePercentile;
+  private final long minHedgeDelayNanos;
+  private final ThreadPoolExecutor hedgeExecutor;
+  private final LatencyWindow getLatencies;
+  private final HedgeBudget hedgeBudget;
+  private final Counter hedgesIssued;
+  private final Counter hedgesWon;
+  private final Counter hedgesThrottled;
+
+  public S3StorageService(S3Client s3Client,
+                          MeterRegistry meterRegistry,
+                          @Value("${aws.s3.hedge.enabled}") boolean hedgingEnabled,
+                          @Value("${aws.s3.hedge.percentile}") double hedgePercentile,
+                          @Value("${aws.s3.hedge.min-delay-ms}") long minHedgeDelayMs,
+                          @Value("${aws.s3.hedge.max-threads}") int hedgeMaxThreads,
+                          @Value("${aws.s3.hedge.budget-ratio}") double hedgeBudgetRatio) {
+    this.s3Client = s3Client;
+    this.meterRegistry = meterRegistry;
+    this.hedgingEnabled = hedgingEnabled;
+    this.hedgePercentile = hedgePercentile;
+    this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMs);
+    this.getLatencies = new LatencyWindow(512);
+    this.hedgeBudget = new HedgeBudget(hedgeBudgetRatio);
+    this.hedgesIssued = meterRegistry.counter("image.s3.hedge", "result", "issued");
+    this.hedgesWon = meterRegistry.counter("image.s3.hedge", "result", "won");
+    this.hedgesThrottled = meterRegistry.counter("image.s3.hedge", "result", "throttled");
+
+    // No queue: if every thread is busy we skip hedging rather than wait behind other GETs
+    AtomicInteger threadCount = new AtomicInteger();
+    this.hedgeExecutor = new ThreadPoolExecutor(0, hedgeMaxThreads, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, "s3-get-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Fetch an object, hedging the request when the first attempt is slow
+   *
+   * @param bucket The S3 bucket
+   * @param key The object key
+   * @return The object bytes
+   */
+  public byte[] getObject(String bucket, String key) {
+    GetObjectRequest request = GetObjectRequest.builder()
+        .bucket(bucket)
+        .key(key)
+        .build();
+
+    long start = System.nanoTime();
+    try {
+      byte[] bytes = hedgingEnabled ? hedgedGet(request) : new GetAttempt(request, true).call();
+      recordLatency("get", "success", start);
+      return bytes;
+    } catch (SdkException e) {
+      recordLatency("get", "error", start);
+      throw e;
+    }
+  }
+
+  /**
+   * Upload an object
+   *
+   * @param bucket The S3 bucket
+   * @param key The object key
+   * @param contentType The content type to store with the object
+   * @param bytes The object bytes
+   */
+  public void putObject(String bucket, String key, String contentType, byte[] bytes) {
+    PutObjectRequest request = PutObjectRequest.builder()
+        .bucket(bucket)
+        .key(key)
+        .contentType(contentType)
+        .build();
+
+    long start = System.nanoTime();
+    try {
+      s3Client.putObject(request, RequestBody.fromBytes(bytes));
+      recordLatency("put", "success", start);
+    } catch (SdkException e) {
+      recordLatency("put", "error", start);
+      throw e;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    hedgeExecutor.shutdownNow();
+  }
+
+  private byte[] hedgedGet(GetObjectRequest request) {
+    hedgeBudget.onRequest();
+    GetAttempt primary = new GetAttempt(request, true);
+    if (!primary.submit()) {
+      // Executor saturated, fall back to a plain GET on the caller thread
+      return primary.call();
+    }
+
+    try {
+      return primary.result.get(hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      // Primary is slower than usual, hedge below
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    } catch (InterruptedException e) {
+      primary.cancel();
+      Thread.currentThread().interrupt();
+      throw SdkClientException.create("Interrupted while waiting for S3 GET", e);
+    }
+
+    if (!hedgeBudget.tryAcquire()) {
+      hedgesThrottled.increment();
+      return await(primary.result, primary);
+    }
+    GetAttempt hedge = new GetAttempt(request, false);
+    if (!hedge.submit()) {
+      hedgeBudget.refund();
+      return await(primary.result, primary);
+    }
+    hedgesIssued.increment();
+    log.debug("Hedging slow S3 GET for key: {}", request.key());
+
+    // Complete with the first success, or with the last failure if both attempts fail
+    CompletableFuture<byte[]> winner = new CompletableFuture<>();
+    AtomicInteger remaining = new AtomicInteger(2);
+    for (GetAttempt attempt : Arrays.asList(primary, hedge)) {
+      attempt.result.whenComplete((bytes, error) -> {
+        if (error == null) {
+          if (winner.complete(bytes) && attempt == hedge) {
+            hedgesWon.increment();
+          }
+        } else if (remaining.decrementAndGet() == 0) {
+          winner.completeExceptionally(error);
+        }
+      });
+    }
+
+    try {
+      return await(winner, primary, hedge);
+    } finally {
+      primary.cancel();
+      hedge.cancel();
+    }
+  }
+
+  private byte[] await(CompletableFuture<byte[]> future, GetAttempt... attempts) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw unwrap(e.getCause());
+    } catch (InterruptedException e) {
+      for (GetAttempt attempt : attempts) {
+        attempt.cancel();
+      }
+      Thread.currentThread().interrupt();
+      throw SdkClientException.create("Interrupted while waiting for S3 GET", e);
+    }
+  }
+
+  /**
+   * Delay before hedging: the configured percentile of recent GET latencies,
+   * never below the configured minimum
+   */
+  private long hedgeDelayNanos() {
+    return Math.max(minHedgeDelayNanos, getLatencies.percentile(hedgePercentile));
+  }
+
+  private void recordLatency(String operation, String outcome, long startNanos) {
+    Timer.builder("image.s3.requests")
+        .description("S3 request latency per operation, including retries and hedging")
+        .tag("operation", operation)
+        .tag("outcome", outcome)
+        .publishPercentiles(0.5, 0.9, 0.99)
+        .register(meterRegistry)
+        .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private static SdkException unwrap(Throwable error) {
+    if (error instanceof CompletionException && error.getCause() != null) {
+      error = error.getCause();
+    }
+    if (error instanceof SdkException) {
+      return (SdkException) error;
+    }
+    return SdkClientException.create("S3 GET failed: " + error.getMessage(), error);
+  }
+
+  /**
+   * A single GET attempt that can be aborted while it is reading the body
+   */
+  private final class GetAttempt {
+    private final GetObjectRequest request;
+    private final boolean primary;
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private final AtomicReference<ResponseInputStream<GetObjectResponse>> stream = new AtomicReference<>();
+    private final AtomicBoolean latencyRecorded = new AtomicBoolean();
+    private volatile Future<?> task;
+    private volatile boolean cancelled;
+    private volatile long startNanos;
+
+    private GetAttempt(GetObjectRequest request, boolean primary) {
+      this.request = request;
+      this.primary = primary;
+    }
+
+    private boolean submit() {
+      try {
+        task = hedgeExecutor.submit(() -> {
+          try {
+            result.complete(call());
+          } catch (Throwable t) {
+            result.completeExceptionally(t);
+          }
+        });
+        return true;
+      } catch (RejectedExecutionException e) {
+        return false;
+      }
+    }
+
+    private byte[] call() {
+      startNanos = System.nanoTime();
+      try (ResponseInputStream<GetObjectResponse> in = s3Client.getObject(request)) {
+        stream.set(in);
+        if (cancelled) {
+          in.abort();
+          throw SdkClientException.create("S3 GET cancelled");
+        }
+        byte[] bytes = IoUtils.toByteArray(in);
+        recordLatency();
+        return bytes;
+      } catch (IOException e) {
+        throw SdkClientException.create("Error reading S3 object body: " + e.getMessage(), e);
+      }
+    }
+
+    private void cancel() {
+      cancelled = true;
+      if (result.isDone()) {
+        return;
+      }
+      // A primary that lost ran for at least the hedge delay, and the time so far is
+      // a lower bound on its latency. Recording it keeps the slow tail in the window,
+      // otherwise hedged GETs would drag the hedge delay down and cause ever more
+      // hedging. A losing hedge is cancelled shortly after it started, so its time
+      // says nothing about S3 latency and is left out.
+      if (primary) {
+        recordLatency();
+      }
+
+      // Abort drops the connection instead of draining the remaining body
+      ResponseInputStream<GetObjectResponse> in = stream.get();
+      if (in != null) {
+        in.abort();
+      }
+      Future<?> running = task;
+      if (running != null) {
+        running.cancel(true);
+      }
+    }
+
+    private void recordLatency() {
+      long started = startNanos;
+      if (started != 0 && latencyRecorded.compareAndSet(false, true)) {
+        getLatencies.record(System.nanoTime() - started);
+      }
+    }
+  }
+
+  /**
+   * Token bucket that allows hedges for at most a fixed ratio of GETs. Each GET
+   * adds ratio tokens and each hedge spends one, with a small cap for bursts.
+   */
+  private static final class HedgeBudget {
+    private static final double MAX_TOKENS = 10;
+
+    private final double ratio;
+    private double tokens;
+
+    private HedgeBudget(double ratio) {
+      this.ratio = ratio;
+    }
+
+    private synchronized void onRequest() {
+      tokens = Math.min(MAX_TOKENS, tokens + ratio);
+    }
+
+    private synchronized boolean tryAcquire() {
+      if (tokens < 1) {
+        return false;
+      }
+      tokens -= 1;
+      return true;
+    }
+
+    private synchronized void refund() {
+      tokens = Math.min(MAX_TOKENS, tokens + 1);
+    }
+  }
+
+  /**
+   * Fixed-size ring of recent latencies used to pick the hedge delay
+   */
+  private static final class LatencyWindow {
+    private static final int MIN_SAMPLES = 32;
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    private LatencyWindow(int capacity) {
+      this.samples = new long[capacity];
+    }
+
+    private synchronized void record(long nanos) {
+      samples[next] = nanos;
+      next = (next + 1) % samples.length;
+      size = Math.min(size + 1, samples.length);
+    }
+
+    /**
+     * @return The percentile in nanoseconds, or Long.MAX_VALUE until there are
+     *         enough samples for it to mean anything, which disables hedging
+     */
+    private long percentile(double percentile) {
+      long[] sorted;
+      synchronized (this) {
+        if (size < MIN_SAMPLES) {
+          return Long.MAX_VALUE;
+        }
+        sorted = Arrays.copyOf(samples, size);
+      }
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+  }
+}
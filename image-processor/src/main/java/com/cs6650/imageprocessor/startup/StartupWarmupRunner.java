@@ -0,0 +1,119 @@
+package com.cs6650.imageprocessor.startup;
+
+import com.cs6650.imageprocessor.service.ImageService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a synthetic workload through every processing stage before the pod
+ * reports ready. Spring Boot only moves readiness to ACCEPTING_TRAFFIC after
+ * all ApplicationRunners return, so new HPA replicas don't take traffic while
+ * ImageIO, fonts and the pixel loops are still cold.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StartupWarmupRunner implements ApplicationRunner {
+
+  private static final String[] WARMUP_FORMATS = {"jpg", "png"};
+
+  private final ImageService imageService;
+  private final MeterRegistry meterRegistry;
+  private final ApplicationContext applicationContext;
+
+  @Value("${startup.warmup.enabled}")
+  private boolean warmupEnabled;
+
+  @Value("${startup.warmup.iterations}")
+  private int warmupIterations;
+
+  @Value("${startup.warmup.width}")
+  private int warmupWidth;
+
+  @Value("${startup.warmup.height}")
+  private int warmupHeight;
+
+  @Value("${startup.training-run}")
+  private boolean trainingRun;
+
+  private volatile long timeToReadyMillis;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (warmupEnabled) {
+      Timer.Sample sample = Timer.start(meterRegistry);
+      try {
+        for (String formatName : WARMUP_FORMATS) {
+          byte[] imageBytes = createSyntheticImage(formatName);
+          for (int i = 0; i < warmupIterations; i++) {
+            imageService.warmUp(imageBytes, formatName);
+          }
+        }
+        long warmupNanos = sample.stop(meterRegistry.timer("image.startup.warmup"));
+        log.info("Warm-up finished: {} iterations per format in {} ms",
+            warmupIterations, TimeUnit.NANOSECONDS.toMillis(warmupNanos));
+      } catch (IOException | RuntimeException e) {
+        // A failed warm-up only means slower first requests, so still let the pod become ready
+        meterRegistry.counter("image.startup.warmup.failures").increment();
+        log.error("Warm-up failed, continuing startup without it", e);
+      }
+    }
+
+    // JVM uptime covers JVM boot and Spring startup as well as the warm-up itself
+    timeToReadyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    TimeGauge.builder("image.startup.time.to.ready", this, TimeUnit.MILLISECONDS, r -> r.timeToReadyMillis)
+        .description("Time from JVM start until the pod accepts traffic")
+        .register(meterRegistry);
+    log.info("Time to ready: {} ms", timeToReadyMillis);
+  }
+
+  /**
+   * Exit once the context is ready when running as the AppCDS training run
+   * in the Docker build, so the loaded class list can be dumped.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void exitAfterTrainingRun() {
+    if (trainingRun) {
+      log.info("Training run complete, shutting down");
+      System.exit(SpringApplication.exit(applicationContext));
+    }
+  }
+
+  /**
+   * Build a gradient image with some text on it so the encoders see
+   * realistic, non-uniform pixel data
+   */
+  private byte[] createSyntheticImage(String formatName) throws IOException {
+    BufferedImage image = new BufferedImage(warmupWidth, warmupHeight, BufferedImage.TYPE_INT_RGB);
+    Graphics2D g2d = image.createGraphics();
+    g2d.setPaint(new GradientPaint(0, 0, Color.ORANGE, warmupWidth, warmupHeight, Color.BLUE));
+    g2d.fillRect(0, 0, warmupWidth, warmupHeight);
+    g2d.setColor(Color.WHITE);
+    g2d.setFont(new Font("Arial", Font.PLAIN, warmupHeight / 10));
+    g2d.drawString("warm-up", warmupWidth / 10, warmupHeight / 2);
+    g2d.dispose();
+
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    ImageIO.write(image, formatName, os);
+    return os.toByteArray();
+  }
+}
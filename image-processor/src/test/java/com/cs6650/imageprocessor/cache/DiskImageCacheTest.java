@@ -0,0 +1,142 @@
+package com.cs6650.imageprocessor.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exercises the segment format, index rebuild and eviction against a temporary directory
+ */
+class DiskImageCacheTest {
+
+  private static final int HEADER_SIZE = 12;
+  private static final String FIRST_SEGMENT = "segment-00000000.dat";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void putThenGet() {
+    DiskImageCache cache = openCache(1, 4);
+
+    cache.put("a.jpg", bytes("first image", 0));
+
+    assertThat(read(cache.get("a.jpg"))).isEqualTo(bytes("first image", 0));
+    assertThat(cache.get("missing.jpg")).isEmpty();
+  }
+
+  @Test
+  void reopenRebuildsIndexFromSegments() {
+    DiskImageCache cache = openCache(1, 4);
+    cache.put("a.jpg", bytes("first image", 0));
+    cache.put("b.png", bytes("second image", 0));
+
+    DiskImageCache reopened = openCache(1, 4);
+
+    assertThat(read(reopened.get("a.jpg"))).isEqualTo(bytes("first image", 0));
+    assertThat(read(reopened.get("b.png"))).isEqualTo(bytes("second image", 0));
+
+    // New records are appended after the rebuilt ones
+    reopened.put("c.jpg", bytes("third image", 0));
+    assertThat(read(openCache(1, 4).get("c.jpg"))).isEqualTo(bytes("third image", 0));
+  }
+
+  @Test
+  void tornRecordEndsTheSegmentOnReopen() throws IOException {
+    DiskImageCache cache = openCache(1, 4);
+    byte[] first = bytes("first image", 0);
+    cache.put("a.jpg", first);
+    cache.put("b.jpg", bytes("second image", 0));
+
+    // Simulate a crash before the second record's header was written: key and data are there, magic isn't
+    int secondRecordOffset = HEADER_SIZE + "a.jpg".length() + first.length;
+    try (FileChannel channel = FileChannel.open(directory.resolve(FIRST_SEGMENT), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4), secondRecordOffset);
+    }
+
+    DiskImageCache reopened = openCache(1, 4);
+
+    assertThat(read(reopened.get("a.jpg"))).isEqualTo(first);
+    assertThat(reopened.get("b.jpg")).isEmpty();
+
+    // The torn record's space is reused
+    reopened.put("c.jpg", bytes("third image", 0));
+    assertThat(read(openCache(1, 4).get("c.jpg"))).isEqualTo(bytes("third image", 0));
+  }
+
+  @Test
+  void evictsOldestSegmentsOverSizeLimit() {
+    DiskImageCache cache = openCache(1, 2);
+    // Each image fills most of a 1 MB segment, so every put rolls a new one
+    byte[] image = bytes("", 600 * 1024);
+
+    cache.put("1.jpg", image);
+    cache.put("2.jpg", image);
+    cache.put("3.jpg", image);
+    cache.put("4.jpg", image);
+
+    assertThat(cache.get("1.jpg")).isEmpty();
+    assertThat(cache.get("2.jpg")).isEmpty();
+    assertThat(read(cache.get("3.jpg"))).isEqualTo(image);
+    assertThat(read(cache.get("4.jpg"))).isEqualTo(image);
+    assertThat(directory.resolve(FIRST_SEGMENT)).doesNotExist();
+    assertThat(meterRegistry.get("image.cache.disk.segments").gauge().value()).isEqualTo(2);
+  }
+
+  @Test
+  void unusableDirectoryDisablesCache() throws IOException {
+    Path notADirectory = Files.createFile(directory.resolve("cache"));
+    DiskImageCache cache = new DiskImageCache(meterRegistry, true, notADirectory.toString(), 1, 4);
+
+    cache.open();
+    cache.put("a.jpg", bytes("first image", 0));
+
+    assertThat(cache.get("a.jpg")).isEmpty();
+  }
+
+  @Test
+  void strayFilesAreSkipped() throws IOException {
+    Files.write(directory.resolve("segment-foo.dat"), bytes("not a segment", 0));
+
+    DiskImageCache cache = openCache(1, 4);
+    cache.put("a.jpg", bytes("first image", 0));
+
+    assertThat(read(cache.get("a.jpg"))).isEqualTo(bytes("first image", 0));
+  }
+
+  private DiskImageCache openCache(long segmentSizeMb, long maxSizeMb) {
+    DiskImageCache cache = new DiskImageCache(meterRegistry, true, directory.toString(), segmentSizeMb, maxSizeMb);
+    cache.open();
+    return cache;
+  }
+
+  private static byte[] bytes(String text, int padding) {
+    byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+    byte[] result = Arrays.copyOf(textBytes, textBytes.length + padding);
+    Arrays.fill(result, textBytes.length, result.length, (byte) 7);
+    return result;
+  }
+
+  private static byte[] read(Optional<ByteBuffer> buffer) {
+    assertThat(buffer).isPresent();
+    ByteBuffer view = buffer.get().duplicate();
+    byte[] result = new byte[view.remaining()];
+    view.get(result);
+    return result;
+  }
+}
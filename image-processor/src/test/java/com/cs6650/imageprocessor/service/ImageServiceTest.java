@@ -0,0 +1,112 @@
+package com.cs6650.imageprocessor.service;
+
+import com.cs6650.imageprocessor.cache.DiskImageCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that only a missing key is reported as not found when fetching an image
+ */
+class ImageServiceTest {
+
+  private static final String KEY = "image.jpg";
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private S3StorageService storageService;
+
+  @AfterEach
+  void tearDown() {
+    if (storageService != null) {
+      storageService.shutdown();
+    }
+  }
+
+  @Test
+  void missingKeyIsNotFound() {
+    ImageService imageService = createService((SdkException) NoSuchKeyException.builder()
+        .message("The specified key does not exist.")
+        .statusCode(404)
+        .build());
+
+    assertThatThrownBy(() -> imageService.getImage(KEY))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("Image not found");
+  }
+
+  @Test
+  void notFoundStatusWithoutNoSuchKeyIsNotFound() {
+    ImageService imageService = createService((SdkException) S3Exception.builder()
+        .message("Not Found")
+        .statusCode(404)
+        .build());
+
+    assertThatThrownBy(() -> imageService.getImage(KEY))
+        .isInstanceOf(IOException.class);
+  }
+
+  @Test
+  void transportTimeoutIsNotReportedAsNotFound() {
+    SdkClientException timeout = SdkClientException.create("Unable to execute HTTP request: Read timed out");
+    ImageService imageService = createService(timeout);
+
+    assertThatThrownBy(() -> imageService.getImage(KEY))
+        .isSameAs(timeout);
+  }
+
+  @Test
+  void serverErrorIsNotReportedAsNotFound() {
+    ImageService imageService = createService((SdkException) S3Exception.builder()
+        .message("Service Unavailable")
+        .statusCode(503)
+        .build());
+
+    assertThatThrownBy(() -> imageService.getImage(KEY))
+        .isInstanceOf(S3Exception.class)
+        .isNotInstanceOf(IOException.class);
+  }
+
+  private ImageService createService(SdkException failure) {
+    storageService = new S3StorageService(new FailingS3Client(failure), meterRegistry, false, 0.95, 20, 4, 0.05);
+    DiskImageCache diskImageCache = new DiskImageCache(meterRegistry, false, "unused", 64, 1024);
+    return new ImageService(storageService, diskImageCache, null);
+  }
+
+  /**
+   * S3 client whose GETs always fail with the given exception
+   */
+  private static final class FailingS3Client implements S3Client {
+    private final SdkException failure;
+
+    private FailingS3Client(SdkException failure) {
+      this.failure = failure;
+    }
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+      throw failure;
+    }
+
+    @Override
+    public String serviceName() {
+      return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,262 @@
+package com.cs6650.imageprocessor.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Exercises the hedged GET logic against an in-process fake S3 client with injected latency
+ */
+class S3StorageServiceTest {
+
+  private static final String BUCKET = "images-bucket";
+  private static final String KEY = "image.jpg";
+  private static final byte[] IMAGE_BYTES = "image-bytes".getBytes(StandardCharsets.UTF_8);
+  private static final long MIN_HEDGE_DELAY_MS = 20;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private FakeS3Client s3Client;
+  private S3StorageService storageService;
+
+  @BeforeEach
+  void setUp() {
+    s3Client = new FakeS3Client();
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (storageService != null) {
+      storageService.shutdown();
+    }
+  }
+
+  @Test
+  void fastPrimaryIsNotHedged() {
+    storageService = createService(4, 0.05);
+    primeLatencyWindow();
+
+    byte[] bytes = storageService.getObject(BUCKET, KEY);
+
+    assertThat(bytes).isEqualTo(IMAGE_BYTES);
+    assertThat(s3Client.calls).hasSize(33);
+    assertThat(hedgeCount("issued")).isZero();
+  }
+
+  @Test
+  void slowPrimaryLosesToHedgeAndIsAborted() {
+    storageService = createService(4, 0.05);
+    primeLatencyWindow();
+    FakeBody slowBody = new FakeBody(TimeUnit.SECONDS.toMillis(5));
+    s3Client.behaviors.add(Behavior.body(slowBody));
+
+    long start = System.nanoTime();
+    byte[] bytes = storageService.getObject(BUCKET, KEY);
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    assertThat(bytes).isEqualTo(IMAGE_BYTES);
+    assertThat(elapsedMs).isLessThan(TimeUnit.SECONDS.toMillis(5));
+    assertThat(hedgeCount("issued")).isEqualTo(1);
+    assertThat(hedgeCount("won")).isEqualTo(1);
+    assertThat(slowBody.aborted).isTrue();
+  }
+
+  @Test
+  void failsWhenPrimaryAndHedgeBothFail() {
+    storageService = createService(4, 0.05);
+    primeLatencyWindow();
+    s3Client.behaviors.add(Behavior.failAfter(MIN_HEDGE_DELAY_MS * 5));
+    s3Client.behaviors.add(Behavior.failAfter(0));
+
+    assertThatThrownBy(() -> storageService.getObject(BUCKET, KEY))
+        .isInstanceOf(SdkException.class)
+        .hasMessageContaining("injected failure");
+    assertThat(hedgeCount("issued")).isEqualTo(1);
+    assertThat(hedgeCount("won")).isZero();
+  }
+
+  @Test
+  void exhaustedBudgetSkipsHedge() {
+    storageService = createService(4, 0);
+    primeLatencyWindow();
+    s3Client.behaviors.add(Behavior.delay(MIN_HEDGE_DELAY_MS * 5));
+
+    byte[] bytes = storageService.getObject(BUCKET, KEY);
+
+    assertThat(bytes).isEqualTo(IMAGE_BYTES);
+    assertThat(s3Client.calls).hasSize(33);
+    assertThat(hedgeCount("issued")).isZero();
+    assertThat(hedgeCount("throttled")).isEqualTo(1);
+  }
+
+  @Test
+  void saturatedExecutorFallsBackToInlineGet() throws Exception {
+    storageService = createService(1, 0.05);
+    FakeBody blockedBody = new FakeBody(TimeUnit.SECONDS.toMillis(5));
+    s3Client.behaviors.add(Behavior.body(blockedBody));
+
+    // Occupy the only executor thread with a GET that blocks on its body
+    CompletableFuture<byte[]> blocked = CompletableFuture.supplyAsync(() -> storageService.getObject(BUCKET, KEY));
+    blockedBody.started.await(5, TimeUnit.SECONDS);
+
+    byte[] bytes = storageService.getObject(BUCKET, KEY);
+
+    assertThat(bytes).isEqualTo(IMAGE_BYTES);
+    assertThat(s3Client.calls).last().isEqualTo(Thread.currentThread().getName());
+
+    blockedBody.release.countDown();
+    assertThat(blocked.get(5, TimeUnit.SECONDS)).isEqualTo(IMAGE_BYTES);
+  }
+
+  private S3StorageService createService(int maxThreads, double budgetRatio) {
+    return new S3StorageService(s3Client, meterRegistry, true, 0.95, MIN_HEDGE_DELAY_MS, maxThreads, budgetRatio);
+  }
+
+  /**
+   * Hedging only starts once the latency window has enough samples
+   */
+  private void primeLatencyWindow() {
+    for (int i = 0; i < 32; i++) {
+      storageService.getObject(BUCKET, KEY);
+    }
+  }
+
+  private double hedgeCount(String result) {
+    return meterRegistry.counter("image.s3.hedge", "result", result).count();
+  }
+
+  /**
+   * What the fake does for one GET: wait, then fail or return a body
+   */
+  private static final class Behavior {
+    private final long responseDelayMs;
+    private final boolean fail;
+    private final FakeBody body;
+
+    private Behavior(long responseDelayMs, boolean fail, FakeBody body) {
+      this.responseDelayMs = responseDelayMs;
+      this.fail = fail;
+      this.body = body;
+    }
+
+    static Behavior fast() {
+      return new Behavior(0, false, null);
+    }
+
+    static Behavior delay(long responseDelayMs) {
+      return new Behavior(responseDelayMs, false, null);
+    }
+
+    static Behavior failAfter(long responseDelayMs) {
+      return new Behavior(responseDelayMs, true, null);
+    }
+
+    static Behavior body(FakeBody body) {
+      return new Behavior(0, false, body);
+    }
+  }
+
+  /**
+   * Response body that blocks on its first read until released, aborted or timed out
+   */
+  private static final class FakeBody extends InputStream {
+    private final long blockMs;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final InputStream delegate = new ByteArrayInputStream(IMAGE_BYTES);
+    private volatile boolean aborted;
+
+    private FakeBody(long blockMs) {
+      this.blockMs = blockMs;
+    }
+
+    @Override
+    public int read() throws IOException {
+      started.countDown();
+      try {
+        release.await(blockMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted", e);
+      }
+      if (aborted) {
+        throw new IOException("aborted");
+      }
+      return delegate.read();
+    }
+
+    void abort() {
+      aborted = true;
+      release.countDown();
+    }
+  }
+
+  /**
+   * S3 client that only supports GetObject, with latency and failures injected per call
+   */
+  private static final class FakeS3Client implements S3Client {
+    private final Queue<Behavior> behaviors = new ConcurrentLinkedQueue<>();
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(GetObjectRequest request) {
+      calls.add(Thread.currentThread().getName());
+      Behavior behavior = behaviors.poll();
+      if (behavior == null) {
+        behavior = Behavior.fast();
+      }
+
+      if (behavior.responseDelayMs > 0) {
+        try {
+          Thread.sleep(behavior.responseDelayMs);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw SdkClientException.create("interrupted", e);
+        }
+      }
+      if (behavior.fail) {
+        throw (S3Exception) S3Exception.builder().message("injected failure").build();
+      }
+
+      FakeBody body = behavior.body != null ? behavior.body : new FakeBody(0);
+      if (behavior.body == null) {
+        body.release.countDown();
+      }
+      return new ResponseInputStream<>(GetObjectResponse.builder().build(),
+          AbortableInputStream.create(body, body::abort));
+    }
+
+    @Override
+    public String serviceName() {
+      return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}